@@ -0,0 +1,145 @@
+package com.jkv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Copia WAL e SSTable di un primario in una directory locale letta da {@link JKVReplica}.
+ *
+ * <p>Ogni {@link #ship()} legge prima la parte nuova del WAL, poi allinea le SSTable e solo alla
+ * fine pubblica il WAL e il timestamp di spedizione. Così una replica che vede un nuovo segmento
+ * del WAL (flush sul primario) trova già le SSTable che contengono i dati del segmento precedente.</p>
+ */
+public class DirectoryShipper {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryShipper.class);
+    private static final int MAX_SYNC_ATTEMPTS = 5;
+
+    private final File primaryWal;
+    private final File primarySSTableDir;
+    private final File replicaWal;
+    private final File replicaSSTableDir;
+    private final File stateFile;
+
+    private long shippedSegment = -1;
+    private long shippedOffset = 0;
+
+    /**
+     * @param primaryDir directory del primario, con wal.log e sstables/
+     * @param replicaDir directory di destinazione, da aprire con {@link JKVReplica}
+     */
+    public DirectoryShipper(File primaryDir, File replicaDir) throws IOException {
+        this.primaryWal = new File(primaryDir, "wal.log");
+        this.primarySSTableDir = new File(primaryDir, "sstables");
+        this.replicaWal = new File(replicaDir, "wal.log");
+        this.replicaSSTableDir = new File(replicaDir, "sstables");
+        this.stateFile = new File(replicaDir, JKVReplica.STATE_FILE);
+        if (!replicaSSTableDir.exists() && !replicaSSTableDir.mkdirs()) {
+            throw new IOException("Failed to create directory tree: " + replicaSSTableDir.getAbsolutePath());
+        }
+    }
+
+    public synchronized void ship() throws IOException {
+        long shippedAt = System.currentTimeMillis();
+
+        WalManager.Chunk chunk = WalManager.readFrom(primaryWal, shippedSegment, shippedOffset);
+        syncSSTables();
+
+        if (chunk.segment() != shippedSegment || chunk.offset() == 0) {
+            // Nuovo segmento: la copia viene sostituita per intero
+            File tmp = new File(replicaWal.getAbsolutePath() + ".tmp");
+            Files.write(tmp.toPath(), chunk.data());
+            Files.move(tmp.toPath(), replicaWal.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } else if (chunk.data().length > 0) {
+            try (FileOutputStream fos = new FileOutputStream(replicaWal, true)) {
+                fos.write(chunk.data());
+            }
+        }
+        shippedSegment = chunk.segment();
+        shippedOffset = chunk.end();
+
+        File tmpState = new File(stateFile.getAbsolutePath() + ".tmp");
+        Files.writeString(tmpState.toPath(), Long.toString(shippedAt), StandardCharsets.UTF_8);
+        Files.move(tmpState.toPath(), stateFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Copia le SSTable mancanti e rimuove quelle non più presenti sul primario. Se una tabella
+     * sparisce durante la copia (compattazione in corso) il giro viene ripetuto con un nuovo elenco.
+     */
+    private void syncSSTables() throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                copySSTables();
+                return;
+            } catch (NoSuchFileException e) {
+                if (attempt >= MAX_SYNC_ATTEMPTS) throw e;
+                logger.info("SSTable {} vanished during shipping, retrying", e.getFile());
+            }
+        }
+    }
+
+    private void copySSTables() throws IOException {
+        File[] primaryFiles = primarySSTableDir.listFiles((_, name) -> name.endsWith(".bin"));
+        Set<String> primaryNames = new HashSet<>();
+        if (primaryFiles != null) {
+            for (File bin : primaryFiles) {
+                primaryNames.add(bin.getName());
+            }
+        }
+
+        for (String name : primaryNames) {
+            File target = new File(replicaSSTableDir, name);
+            String idxName = name.replace(".bin", ".idx");
+            File idxTarget = new File(replicaSSTableDir, idxName);
+
+            // Le SSTable pubblicate sono immutabili: basta confrontare le dimensioni per
+            // riconoscere una copia incompleta da sostituire
+            if (sameLength(new File(primarySSTableDir, name), target)
+                    && sameLength(new File(primarySSTableDir, idxName), idxTarget)) {
+                continue;
+            }
+
+            // L'indice prima del .bin: la replica vede la tabella solo quando è completa
+            copyAtomically(new File(primarySSTableDir, idxName), idxTarget);
+            try {
+                copyAtomically(new File(primarySSTableDir, name), target);
+            } catch (NoSuchFileException e) {
+                Files.deleteIfExists(idxTarget.toPath());
+                throw e;
+            }
+        }
+
+        File[] replicaFiles = replicaSSTableDir.listFiles((_, name) -> name.endsWith(".bin"));
+        if (replicaFiles == null) return;
+        for (File bin : replicaFiles) {
+            if (primaryNames.contains(bin.getName())) continue;
+            File idx = new File(bin.getAbsolutePath().replace(".bin", ".idx"));
+            if (!bin.delete()) {
+                logger.warn("Failed to delete shipped SSTable: {}", bin.getName());
+            } else if (idx.exists() && !idx.delete()) {
+                logger.warn("Failed to delete shipped SSTable index: {}", idx.getName());
+            }
+        }
+    }
+
+    private static boolean sameLength(File source, File target) throws IOException {
+        if (!target.exists()) return false;
+        if (!source.exists()) throw new NoSuchFileException(source.getPath());
+        return source.length() == target.length();
+    }
+
+    private void copyAtomically(File source, File target) throws IOException {
+        File tmp = new File(target.getAbsolutePath() + ".tmp");
+        try {
+            Files.copy(source.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+}
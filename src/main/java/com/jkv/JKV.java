@@ -5,10 +5,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 public class JKV {
     private static final Logger logger = LoggerFactory.getLogger(JKV.class);
@@ -16,27 +15,95 @@ public class JKV {
     private final WalManager walManager;
     private final MemTable memTable;
     private final SSTableManager sstableManager;
+    private final MergeOperator mergeOperator;
+    private final StoreReader reader;
 
     private static final int MEMTABLE_LIMIT = 5000;
-    private static final String TOMBSTONE = "__TOMBSTONE__";
 
     public JKV() throws IOException {
-        File sstableDir = new File("sstables");
-        this.sstableManager = new SSTableManager(sstableDir);
-        this.memTable = new MemTable(MEMTABLE_LIMIT, sstableManager);
+        this(new SSTableManager(new File("sstables")), null);
+    }
+
+    /**
+     * @param mergeOperator operatore usato da {@link #merge(String, String)}
+     */
+    public JKV(MergeOperator mergeOperator) throws IOException {
+        this(new SSTableManager(new File("sstables")), mergeOperator);
+    }
+
+    /**
+     * @param compactionPool    pool su cui vengono eseguite le subcompaction in parallelo
+     * @param maxSubcompactions numero massimo di intervalli di chiavi per compattazione
+     */
+    public JKV(ExecutorService compactionPool, int maxSubcompactions) throws IOException {
+        this(compactionPool, maxSubcompactions, null);
+    }
+
+    public JKV(ExecutorService compactionPool, int maxSubcompactions, MergeOperator mergeOperator) throws IOException {
+        this(new SSTableManager(new File("sstables"), compactionPool, maxSubcompactions), mergeOperator);
+    }
+
+    private JKV(SSTableManager sstableManager, MergeOperator mergeOperator) throws IOException {
+        this.sstableManager = sstableManager;
+        this.mergeOperator = mergeOperator;
+        this.memTable = new MemTable(MEMTABLE_LIMIT, sstableManager, mergeOperator);
+        this.reader = new StoreReader(memTable, sstableManager);
         File walFile = new File("wal.log");
         this.walManager = new WalManager(walFile);
 
         logger.info("Replaying WAL to restore MemTable...");
-        walManager.replay(entry -> memTable.put(entry.key(), entry.value()));
+        walManager.replay(entry -> {
+            switch (entry.type()) {
+                case PUT -> memTable.put(entry.key(), entry.value());
+                case DELETE -> memTable.delete(entry.key());
+                case MERGE -> {
+                    requireMergeOperator();
+                    memTable.merge(entry.key(), entry.value());
+                }
+            }
+        });
         logger.info("WAL replay completed. MemTable restored with {} entries.", memTable.size());
+
+        if (walManager.isLegacyFormat()) {
+            // Il WAL precedente ai record DEL viene consolidato subito in una SSTable,
+            // così i nuovi record non finiscono in un file con regole di lettura diverse
+            if (memTable.size() > 0) memTable.flush();
+            walManager.clear();
+            logger.info("Legacy WAL migrated to the current format.");
+        }
     }
 
     public void put(String key, String value) throws IOException {
+        if (value == null) { // nessun valore: equivale a una cancellazione
+            del(key);
+            return;
+        }
 
         walManager.appendPut(key, value);
         memTable.put(key, value);
+        flushIfFull();
+    }
+
+    /**
+     * Aggiorna la chiave con l'operatore configurato senza leggerne il valore attuale.
+     * L'operando viene scritto nel WAL e combinato in lettura o al flush della MemTable.
+     * Un operando rifiutato dall'operatore fa fallire la chiamata senza arrivare al WAL.
+     */
+    public void merge(String key, String operand) throws IOException {
+        requireMergeOperator();
+        memTable.checkMerge(key, operand);
+        walManager.appendMerge(key, operand);
+        memTable.merge(key, operand);
+        flushIfFull();
+    }
 
+    private void requireMergeOperator() {
+        if (mergeOperator == null) {
+            throw new IllegalStateException("No MergeOperator configured for this JKV instance");
+        }
+    }
+
+    private void flushIfFull() throws IOException {
         if (memTable.isFull()) {
             logger.info("MemTable reached limit ({} entries). Flushing to SSTable.", MEMTABLE_LIMIT);
             memTable.flush();
@@ -50,48 +117,44 @@ public class JKV {
         }
     }
 
+    /**
+     * Importa SSTable già costruiti (es. con {@link SSTableWriter}) senza passare da WAL e MemTable.
+     * Le tabelle importate diventano le più recenti: la MemTable viene svuotata prima,
+     * così i suoi valori non oscurano i dati importati.
+     */
+    public void ingest(List<Path> sstableFiles) throws IOException {
+        if (memTable.size() > 0) {
+            memTable.flush();
+            walManager.clear();
+            logger.info("MemTable flushed before ingestion.");
+        }
+        sstableManager.ingest(sstableFiles);
+    }
+
     public void del(String key) throws IOException {
-        put(key, TOMBSTONE);
+        walManager.appendDelete(key);
+        memTable.delete(key);
+        flushIfFull();
     }
 
     public String get(String key) {
-        if (memTable.containsKey(key)) {
-            return memTable.get(key);
-        }
+        return reader.get(key);
+    }
 
-        return sstableManager.getFromSSTables(key);
+    /**
+     * Legge più chiavi insieme: prima dalla MemTable, poi le restanti con una sola visita
+     * per SSTable. Le chiavi assenti o cancellate non compaiono nella mappa restituita.
+     */
+    public Map<String, String> multiGet(Collection<String> keys) {
+        return reader.multiGet(keys);
     }
 
     public boolean containsKey(String key) {
-        String val = memTable.get(key);
-        if (val != null) return true;
-        if (memTable.containsKey(key)) return false; // è tombstone
-
-        return sstableManager.getFromSSTables(key) != null;
+        return reader.containsKey(key);
     }
 
     public int size() {
-        Set<String> seen = new HashSet<>();
-        int count = 0;
-
-        for (Map.Entry<String, String> entry : memTable.entrySet()) {
-            if (!SSTableManager.TOMBSTONE.equals(entry.getValue())) {
-                seen.add(entry.getKey());
-                count++;
-            }
-        }
-
-        for (SSTable sstable : sstableManager.getSSTables()) {
-            for (Map.Entry<String, String> entry : sstable.iterate()) {
-                if (seen.contains(entry.getKey())) continue;
-                if (!SSTableManager.TOMBSTONE.equals(entry.getValue())) {
-                    seen.add(entry.getKey());
-                    count++;
-                }
-            }
-        }
-
-        return count;
+        return reader.size();
     }
 
     public void putAll(Map<String, String> map) throws IOException {
@@ -101,15 +164,7 @@ public class JKV {
     }
 
     public Set<String> keySet() {
-        Map<String, String> merged = new TreeMap<>();
-        for (SSTable sstable : sstableManager.getSSTables()) {
-            for (Map.Entry<String, String> e : sstable.iterate()) {
-                merged.put(e.getKey(), e.getValue());
-            }
-        }
-        merged.putAll(memTable.getMemtable());
-        merged.values().removeIf(SSTableManager.TOMBSTONE::equals);
-        return merged.keySet();
+        return reader.keySet();
     }
 
 
@@ -121,23 +176,6 @@ public class JKV {
 
 
     public Iterable<? extends Map.Entry<String, String>> entrySet() {
-        // Usa una TreeMap per mantenere l'ordine e gestire conflitti (memTable prevale su SSTable)
-        Map<String, String> merged = new TreeMap<>();
-
-        // Prima carica tutte le entry dagli SSTable
-        for (SSTable sstable : sstableManager.getSSTables()) {
-            for (Map.Entry<String, String> e : sstable.iterate()) {
-                merged.put(e.getKey(), e.getValue());
-            }
-        }
-
-        // Sovrascrivi con i dati più recenti in memTable (inclusi tombstone)
-        merged.putAll(memTable.getMemtable());
-
-        // Rimuovi i tombstone (cioè le chiavi con valore tombstone)
-        merged.values().removeIf(SSTableManager.TOMBSTONE::equals);
-
-        // Restituisci l'entrySet del map risultante, che è Iterable<Map.Entry<String,String>>
-        return merged.entrySet();
+        return reader.entrySet();
     }
 }
@@ -0,0 +1,147 @@
+package com.jkv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replica in sola lettura di un {@link JKV}, aperta su una copia di WAL e SSTable del primario
+ * (per esempio quella mantenuta da {@link DirectoryShipper}).
+ *
+ * <p>{@link #refresh()} applica in modo incrementale i nuovi record del WAL alla MemTable locale
+ * e riallinea le SSTable con quelle presenti nella copia. Quando il WAL cambia segmento
+ * (flush sul primario) la MemTable viene ricostruita dal nuovo segmento.</p>
+ */
+public class JKVReplica {
+    private static final Logger logger = LoggerFactory.getLogger(JKVReplica.class);
+    static final String STATE_FILE = "replication.state"; // timestamp dell'ultima spedizione
+    private static final int MAX_REFRESH_ATTEMPTS = 5;
+
+    private final File walFile;
+    private final File stateFile;
+    private final SSTableManager sstableManager;
+    private final MemTable memTable;
+    private final MergeOperator mergeOperator;
+    private final StoreReader reader;
+
+    private long walSegment = -1;
+    private long walOffset = 0;
+    private long appliedShippedAt = -1;
+
+    public JKVReplica(File replicaDir) throws IOException {
+        this(replicaDir, null);
+    }
+
+    /**
+     * @param mergeOperator lo stesso operatore del primario, necessario se il WAL contiene merge
+     */
+    public JKVReplica(File replicaDir, MergeOperator mergeOperator) throws IOException {
+        this.walFile = new File(replicaDir, "wal.log");
+        this.stateFile = new File(replicaDir, STATE_FILE);
+        this.sstableManager = new SSTableManager(new File(replicaDir, "sstables"));
+        this.memTable = new MemTable(Integer.MAX_VALUE, sstableManager, mergeOperator);
+        this.mergeOperator = mergeOperator;
+        this.reader = new StoreReader(memTable, sstableManager);
+        refresh();
+    }
+
+    /**
+     * Applica quanto spedito dall'ultima chiamata: nuovi record del WAL e SSTable nuove o compattate.
+     */
+    public synchronized void refresh() throws IOException {
+        // Il timestamp viene letto per primo: lo shipper lo scrive per ultimo, quindi il ritardo
+        // calcolato non sottostima mai quello reale
+        long shippedAt = readShippedAt();
+
+        WalManager.Chunk chunk = WalManager.readFrom(walFile, walSegment, walOffset);
+        refreshSSTables();
+
+        if (chunk.segment() != walSegment || chunk.offset() == 0) {
+            // Il primario ha fatto flush: i dati del vecchio segmento sono ora nelle SSTable
+            memTable.clear();
+            logger.info("Replica switched to WAL segment {}", chunk.segment());
+        }
+        for (WalManager.Entry entry : chunk.entries()) {
+            switch (entry.type()) {
+                case PUT -> memTable.put(entry.key(), entry.value());
+                case DELETE -> memTable.delete(entry.key());
+                case MERGE -> {
+                    if (mergeOperator == null) {
+                        throw new IllegalStateException("WAL contains merge records but no MergeOperator is configured");
+                    }
+                    memTable.merge(entry.key(), entry.value());
+                }
+            }
+        }
+
+        walSegment = chunk.segment();
+        walOffset = chunk.end();
+        appliedShippedAt = shippedAt;
+    }
+
+    // Lo shipper può rimuovere una tabella compattata tra l'elenco della directory e la sua apertura:
+    // in quel caso l'elenco viene riletto, e conterrà già l'output della compattazione
+    private void refreshSSTables() throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                sstableManager.refresh();
+                return;
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                if (attempt >= MAX_REFRESH_ATTEMPTS) throw e;
+                logger.info("SSTable vanished during refresh, retrying: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Millisecondi trascorsi dallo stato del primario che la replica ha applicato; è un limite
+     * superiore a quanto le letture possono essere indietro. -1 se non è mai arrivata una spedizione.
+     */
+    public synchronized long replicationLagMillis() {
+        if (appliedShippedAt < 0) return -1;
+        return System.currentTimeMillis() - appliedShippedAt;
+    }
+
+    private long readShippedAt() throws IOException {
+        if (!stateFile.exists()) return -1;
+        try {
+            return Long.parseLong(Files.readString(stateFile.toPath(), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid replication state file: {}", stateFile.getName());
+            return -1;
+        }
+    }
+
+    public synchronized String get(String key) {
+        return reader.get(key);
+    }
+
+    public synchronized Map<String, String> multiGet(Collection<String> keys) {
+        return reader.multiGet(keys);
+    }
+
+    public synchronized boolean containsKey(String key) {
+        return reader.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return reader.size();
+    }
+
+    public synchronized Set<String> keySet() {
+        return reader.keySet();
+    }
+
+    public synchronized Iterable<? extends Map.Entry<String, String>> entrySet() {
+        return reader.entrySet();
+    }
+}
@@ -4,36 +4,109 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.*;
 
 public class MemTable {
     private static final Logger logger = LoggerFactory.getLogger(MemTable.class);
     private final TreeMap<String, String> memtable = new TreeMap<>();
     private final int memtableLimit;
     private final SSTableManager sstableManager;
-    private static final String TOMBSTONE = "__TOMBSTONE__";
+    private final MergeOperator mergeOperator;
 
-    public MemTable(int memtableLimit, SSTableManager sstableManager) {
+    // Operandi di merge per chiavi il cui valore base è solo negli SSTable (non ancora letto)
+    private final TreeMap<String, List<String>> pendingMerges = new TreeMap<>();
+
+    public MemTable(int memtableLimit, SSTableManager sstableManager, MergeOperator mergeOperator) {
         this.memtableLimit = memtableLimit;
         this.sstableManager = sstableManager;
+        this.mergeOperator = mergeOperator;
     }
 
     public void put(String key, String value) {
+        pendingMerges.remove(key);
         memtable.put(key, value);
     }
 
+    /**
+     * Registra una cancellazione: la chiave resta in MemTable con valore null (tombstone),
+     * così oscura le versioni negli SSTable e viene scritta come tale al flush.
+     */
+    public void delete(String key) {
+        put(key, null);
+    }
+
+    /**
+     * Controlla che l'operando si possa applicare, senza modificare nulla: va chiamato prima
+     * di scriverlo nel WAL. Se la chiave è in MemTable l'operando viene provato sul suo valore.
+     */
+    public void checkMerge(String key, String operand) {
+        mergeOperator.validate(key, operand);
+        if (memtable.containsKey(key)) {
+            mergeOperator.merge(key, get(key), List.of(operand));
+        }
+    }
+
+    /**
+     * Registra un operando senza leggere dagli SSTable: se la chiave è già in MemTable
+     * viene combinato subito, altrimenti resta in attesa fino a get o flush.
+     */
+    public void merge(String key, String operand) {
+        if (memtable.containsKey(key)) {
+            memtable.put(key, fold(key, get(key), List.of(operand)));
+        } else {
+            pendingMerges.computeIfAbsent(key, _ -> new ArrayList<>()).add(operand);
+        }
+    }
+
+    public boolean hasPendingMerge(String key) {
+        return pendingMerges.containsKey(key);
+    }
+
+    public Set<String> pendingMergeKeys() {
+        return pendingMerges.keySet();
+    }
+
+    /**
+     * Applica gli operandi in attesa per la chiave al valore letto dagli SSTable
+     * (null se assente o cancellato). Senza operandi restituisce il valore così com'è.
+     */
+    public String applyPendingMerge(String key, String base) {
+        List<String> operands = pendingMerges.get(key);
+        if (operands == null) return base;
+        return fold(key, base, operands);
+    }
+
+    /**
+     * Applica gli operandi; se l'operatore fallisce (per esempio un valore base non numerico
+     * per un contatore) gli operandi vengono scartati e resta il valore base. Un fallimento qui
+     * non deve impedire replay del WAL e flush, altrimenti il database non si riaprirebbe più.
+     */
+    private String fold(String key, String base, List<String> operands) {
+        try {
+            return mergeOperator.merge(key, base, operands);
+        } catch (RuntimeException e) {
+            logger.warn("Discarding {} merge operands for key {} that cannot be applied: {}", operands.size(), key, e.toString());
+            return base;
+        }
+    }
+
     public String get(String key) {
-        String value = memtable.get(key);
-        if (value == null) return null;
-        if (TOMBSTONE.equals(value)) return null;
-        return value;
+        return memtable.get(key); // null anche per le tombstone
     }
     public boolean isFull() {
-        return memtable.size() >= memtableLimit;
+        return size() >= memtableLimit;
     }
 
     public void flush() throws IOException {
+        if (!pendingMerges.isEmpty()) {
+            // Un'unica lettura batch dei valori base per tutti gli operandi in attesa
+            Map<String, String> bases = sstableManager.multiGetFromSSTables(pendingMerges.keySet());
+            for (Map.Entry<String, List<String>> e : pendingMerges.entrySet()) {
+                memtable.put(e.getKey(), fold(e.getKey(), bases.get(e.getKey()), e.getValue()));
+            }
+            logger.info("Folded merge operands for {} keys before flush.", pendingMerges.size());
+            pendingMerges.clear();
+        }
         sstableManager.flush(memtable);
         memtable.clear();
         logger.info("MemTable flushed and cleared.");
@@ -41,12 +114,20 @@ public class MemTable {
 
 
 
+    /**
+     * Svuota la MemTable senza scrivere SSTable (usato dalle repliche quando il WAL cambia segmento).
+     */
+    public void clear() {
+        memtable.clear();
+        pendingMerges.clear();
+    }
+
     public boolean containsKey(String key) {
         return memtable.containsKey(key);
     }
 
     public int size() {
-        return memtable.size();
+        return memtable.size() + pendingMerges.size();
     }
 
     public TreeMap<String, String> getMemtable(){
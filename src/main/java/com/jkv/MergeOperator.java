@@ -0,0 +1,69 @@
+package com.jkv;
+
+import java.util.List;
+
+/**
+ * Combina gli operandi scritti con {@link JKV#merge(String, String)} con il valore esistente,
+ * senza che chi scrive debba leggere prima la chiave.
+ */
+@FunctionalInterface
+public interface MergeOperator {
+
+    /**
+     * Applica gli operandi, nell'ordine in cui sono stati scritti, al valore esistente.
+     *
+     * @param existing valore corrente, null se la chiave non esiste o è stata cancellata
+     * @return il nuovo valore, mai null
+     */
+    String merge(String key, String existing, List<String> operands);
+
+    /**
+     * Verifica un operando prima che venga scritto nel WAL; deve lanciare un'eccezione se
+     * l'operando non potrà mai essere applicato. Di default lo applica una volta a una chiave assente.
+     */
+    default void validate(String key, String operand) {
+        merge(key, null, List.of(operand));
+    }
+
+    /**
+     * Contatore: somma gli operandi (interi) al valore esistente, 0 se assente.
+     */
+    static MergeOperator counterAdd() {
+        return (key, existing, operands) -> {
+            long sum = existing == null ? 0 : Long.parseLong(existing);
+            for (String operand : operands) {
+                sum += Long.parseLong(operand);
+            }
+            return Long.toString(sum);
+        };
+    }
+
+    /**
+     * Accoda gli operandi al valore esistente separandoli con {@code delimiter}.
+     */
+    static MergeOperator stringAppend(String delimiter) {
+        return (key, existing, operands) -> {
+            StringBuilder sb = new StringBuilder(existing == null ? "" : existing);
+            boolean first = existing == null;
+            for (String operand : operands) {
+                if (!first) sb.append(delimiter);
+                sb.append(operand);
+                first = false;
+            }
+            return sb.toString();
+        };
+    }
+
+    /**
+     * Mantiene il massimo (intero) tra il valore esistente e gli operandi.
+     */
+    static MergeOperator max() {
+        return (key, existing, operands) -> {
+            long max = existing == null ? Long.MIN_VALUE : Long.parseLong(existing);
+            for (String operand : operands) {
+                max = Math.max(max, Long.parseLong(operand));
+            }
+            return Long.toString(max);
+        };
+    }
+}
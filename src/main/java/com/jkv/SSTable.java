@@ -1,6 +1,7 @@
 package com.jkv;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
@@ -8,18 +9,59 @@ import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class SSTable {
+    // Il .bin viene mappato con un solo MappedByteBuffer, indirizzato con offset int
+    static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
     final File binFile;
     final File idxFile;
-    final TreeMap<String, Long> index = new TreeMap<>();
+    final TreeMap<String, Long> index;
     MappedByteBuffer mappedBuffer;
+    private boolean legacyFormat;
+    private int entryCount;
+    private int tombstoneCount;
 
     SSTable(File binFile, File idxFile) throws IOException {
         this.binFile = binFile;
         this.idxFile = idxFile;
+        this.index = new TreeMap<>();
         loadIndex();
         mapFile();
     }
 
+    private SSTable(SSTable opened, File binFile, File idxFile) {
+        this.binFile = binFile;
+        this.idxFile = idxFile;
+        this.index = opened.index;
+        this.mappedBuffer = opened.mappedBuffer;
+        this.legacyFormat = opened.legacyFormat;
+        this.entryCount = opened.entryCount;
+        this.tombstoneCount = opened.tombstoneCount;
+    }
+
+    /**
+     * La stessa tabella dopo che i suoi file sono stati rinominati: indice e mapping restano validi.
+     */
+    SSTable renamedTo(File binFile, File idxFile) {
+        return new SSTable(this, binFile, idxFile);
+    }
+
+    /**
+     * Controlla header e indice di una tabella arrivata dall'esterno: magic riconosciuto e
+     * offset dell'indice dentro al file. Le tabelle scritte da JKV non ne hanno bisogno.
+     */
+    void validate() throws IOException {
+        if (mappedBuffer.capacity() < SSTableWriter.HEADER_SIZE_V1
+                || !SSTableWriter.isKnownMagic(mappedBuffer.getInt(0))) {
+            throw new IOException("Invalid SSTable magic: " + binFile.getName());
+        }
+        int headerSize = legacyFormat ? SSTableWriter.HEADER_SIZE_V1 : SSTableWriter.HEADER_SIZE;
+        for (long offset : index.values()) {
+            if (offset < headerSize || offset + 8 > mappedBuffer.capacity()) {
+                throw new IOException("SSTable index " + idxFile.getName() + " points outside " + binFile.getName());
+            }
+        }
+    }
+
     private void loadIndex() throws IOException {
         try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(idxFile)))) {
             while (in.available() > 0) {
@@ -34,31 +76,80 @@ public class SSTable {
 
     private void mapFile() throws IOException {
         try (FileChannel channel = FileChannel.open(binFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > MAX_FILE_SIZE) {
+                throw new IOException("SSTable " + binFile.getName() + " is larger than " + MAX_FILE_SIZE + " bytes");
+            }
             mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         }
+        // Header: MAGIC, numero di entry e, dal formato v2, numero di tombstone
+        if (mappedBuffer.capacity() >= 8) {
+            legacyFormat = mappedBuffer.getInt(0) == SSTableWriter.MAGIC_V1;
+            entryCount = mappedBuffer.getInt(4);
+            tombstoneCount = !legacyFormat && mappedBuffer.capacity() >= 12 ? mappedBuffer.getInt(8) : 0;
+        }
+    }
+
+    boolean contains(String key) {
+        return index.containsKey(key);
     }
 
+    /**
+     * Restituisce il valore della chiave, null se assente o cancellata.
+     * Usare {@link #contains(String)} per distinguere i due casi.
+     */
     public String search(String key) {
         Long offset = index.get(key);
         if (offset == null) return null;
-        try (RandomAccessFile raf = new RandomAccessFile(binFile, "r")) {
-            raf.seek(offset);
-            int keyLen = raf.readInt();
-            raf.skipBytes(keyLen); // Salta la chiave
-
-            int valLen = raf.readInt();
-            if (valLen == -1) return "__TOMBSTONE__";
-            byte[] valBytes = new byte[valLen];
-            raf.readFully(valBytes);
-            return new String(valBytes, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            return null;
+        return readValue(mappedBuffer.duplicate(), offset);
+    }
+
+    /**
+     * Cerca più chiavi con un solo passaggio sul file mappato. Le chiavi devono essere ordinate,
+     * così gli offset letti sono crescenti. Restituisce solo le chiavi presenti;
+     * le tombstone compaiono con valore null.
+     */
+    public Map<String, String> searchAll(List<String> sortedKeys) {
+        Map<String, String> found = new HashMap<>();
+        ByteBuffer buf = mappedBuffer.duplicate(); // posizione indipendente per ogni chiamata
+        for (String key : sortedKeys) {
+            Long offset = index.get(key);
+            if (offset == null) continue;
+            found.put(key, readValue(buf, offset));
         }
+        return found;
+    }
+
+    /**
+     * Frazione di entry che sono tombstone, usata per decidere le compattazioni di pulizia.
+     */
+    public double tombstoneRatio() {
+        return entryCount == 0 ? 0 : (double) tombstoneCount / entryCount;
+    }
+
+    // Legge il valore all'offset dato: null per le tombstone (valLen == -1)
+    private String readValue(ByteBuffer buf, long offset) {
+        buf.position(Math.toIntExact(offset));
+        int keyLen = buf.getInt();
+        buf.position(buf.position() + keyLen); // Salta la chiave
+
+        int valLen = buf.getInt();
+        if (valLen == -1) return null;
+        byte[] valBytes = new byte[valLen];
+        buf.get(valBytes);
+        String value = new String(valBytes, StandardCharsets.UTF_8);
+
+        // Nel formato v1 le cancellazioni erano scritte come valore letterale
+        if (legacyFormat && SSTableWriter.LEGACY_TOMBSTONE.equals(value)) return null;
+        return value;
     }
 
+    /**
+     * Scorre le entry in ordine di chiave; le tombstone hanno valore null.
+     */
     public Iterable<Map.Entry<String, String>> iterate() {
         return () -> new Iterator<>() {
             private final Iterator<Map.Entry<String, Long>> idxIter = index.entrySet().iterator();
+            private final ByteBuffer buf = mappedBuffer.duplicate();
 
             @Override
             public boolean hasNext() {
@@ -70,28 +161,7 @@ public class SSTable {
                 if (!hasNext()) throw new NoSuchElementException();
 
                 Map.Entry<String, Long> idxEntry = idxIter.next();
-                String key = idxEntry.getKey();
-                Long offset = idxEntry.getValue();
-
-                String value;
-                try (RandomAccessFile raf = new RandomAccessFile(binFile, "r")) {
-                    raf.seek(offset);
-                    int keyLen = raf.readInt();
-                    raf.skipBytes(keyLen);
-
-                    int valLen = raf.readInt();
-                    if (valLen == -1) { // tombstone
-                        value = "__TOMBSTONE__";
-                    } else {
-                        byte[] valBytes = new byte[valLen];
-                        raf.readFully(valBytes);
-                        value = new String(valBytes, StandardCharsets.UTF_8);
-                    }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-
-                return new AbstractMap.SimpleEntry<>(key, value);
+                return new AbstractMap.SimpleEntry<>(idxEntry.getKey(), readValue(buf, idxEntry.getValue()));
             }
         };
     }
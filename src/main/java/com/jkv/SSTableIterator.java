@@ -0,0 +1,66 @@
+package com.jkv;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Legge sequenzialmente le entry di un file .bin, senza passare dall'indice.
+ * Le tombstone (valLen == -1) vengono restituite con valore null.
+ * Può partire da un offset qualsiasi preso dall'indice e leggere solo {@code count} entry,
+ * per scorrere un intervallo di chiavi.
+ */
+class SSTableIterator implements Iterator<Map.Entry<String, String>>, Closeable {
+    private final DataInputStream in;
+    private final boolean legacyFormat;
+    private int count;
+    private int read = 0;
+
+    SSTableIterator(File binFile) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(binFile)));
+        int magic = in.readInt();
+        if (!SSTableWriter.isKnownMagic(magic)) {
+            in.close();
+            throw new IOException("Invalid SSTable magic in " + binFile.getName());
+        }
+        this.legacyFormat = magic == SSTableWriter.MAGIC_V1;
+        this.count = in.readInt();
+        if (!legacyFormat) in.readInt(); // numero di tombstone, qui non serve
+    }
+
+    SSTableIterator(File binFile, long startOffset, int count) throws IOException {
+        this(binFile);
+        in.skipNBytes(startOffset - (legacyFormat ? SSTableWriter.HEADER_SIZE_V1 : SSTableWriter.HEADER_SIZE));
+        this.count = count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return read < count;
+    }
+
+    @Override
+    public Map.Entry<String, String> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        try {
+            int keyLen = in.readInt();
+            String key = new String(in.readNBytes(keyLen), StandardCharsets.UTF_8);
+
+            int valLen = in.readInt();
+            String value = (valLen == -1) ? null : new String(in.readNBytes(valLen), StandardCharsets.UTF_8);
+            if (legacyFormat && SSTableWriter.LEGACY_TOMBSTONE.equals(value)) value = null;
+            read++;
+            return new AbstractMap.SimpleEntry<>(key, value);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
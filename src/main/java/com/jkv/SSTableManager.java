@@ -4,43 +4,130 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class SSTableManager {
     private static final Logger logger = LoggerFactory.getLogger(SSTableManager.class);
     private final File sstableDir;
-    private static final int MAGIC = 0x4A4B565F; // "JKV_"
-    static final String TOMBSTONE = "__TOMBSTONE__";
     private final List<SSTable> sstables = new ArrayList<>();
+    private static final int MULTIGET_PARALLEL_THRESHOLD = 512; // chiavi per tabella oltre cui si usa il pool
+    private static final int MULTIGET_CHUNK_SIZE = 128;
+    private static final int MIN_SUBCOMPACTION_ENTRIES = 4096; // sotto questa soglia non conviene dividere
+    private static final double TOMBSTONE_COMPACTION_RATIO = 0.3; // oltre questa densità si compatta anche una sola tabella
+    private static final long MAX_COMPACTION_OUTPUT = SSTable.MAX_FILE_SIZE / 2; // margine per intervalli non uniformi
+
+    private static final ExecutorService DEFAULT_COMPACTION_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), Thread.ofPlatform().name("jkv-compaction-", 0).daemon().factory());
+
+    private final ExecutorService compactionPool;
+    private final int maxSubcompactions;
+    private long lastTableId; // timestamp usato nel nome dell'ultima tabella creata
 
     public SSTableManager(File sstableDir) throws IOException {
+        this(sstableDir, DEFAULT_COMPACTION_POOL, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param compactionPool    pool su cui girano le subcompaction di una stessa compattazione
+     * @param maxSubcompactions numero massimo di intervalli di chiavi fusi in parallelo
+     */
+    public SSTableManager(File sstableDir, ExecutorService compactionPool, int maxSubcompactions) throws IOException {
+        if (maxSubcompactions < 1) {
+            throw new IllegalArgumentException("maxSubcompactions must be at least 1: " + maxSubcompactions);
+        }
         this.sstableDir = sstableDir;
+        this.compactionPool = compactionPool;
+        this.maxSubcompactions = maxSubcompactions;
         if (!sstableDir.exists()) {
             boolean created = sstableDir.mkdirs();
             if (!created) {
                 throw new IOException("Failed to create directory tree: " + sstableDir.getAbsolutePath());
             }
         }
-        loadSSTables();
+        loadSSTables(false);
+        File[] existing = sstableDir.listFiles();
+        if (existing != null) {
+            for (File file : existing) {
+                lastTableId = Math.max(lastTableId, parseTableId(file.getName()));
+            }
+        }
+    }
+
+    /**
+     * Timestamp per il nome di una nuova tabella, strettamente crescente: due tabelle create
+     * nello stesso millisecondo non finiscono sullo stesso file e l'ordine per nome resta
+     * quello di creazione anche dopo un riavvio.
+     */
+    private synchronized long nextTableId() {
+        lastTableId = Math.max(System.currentTimeMillis(), lastTableId + 1);
+        return lastTableId;
     }
 
-    private void loadSSTables() throws IOException {
+    // "sstable_<ts>..." -> ts, 0 per i file con un altro nome
+    private static long parseTableId(String name) {
+        if (!name.startsWith("sstable_")) return 0;
+        int end = "sstable_".length();
+        while (end < name.length() && Character.isDigit(name.charAt(end))) end++;
+        if (end == "sstable_".length()) return 0;
+        try {
+            return Long.parseLong(name.substring("sstable_".length(), end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param failOnMissingIndex se true un .bin senza indice viene trattato come una tabella
+     *                           rimossa durante l'elenco e fa fallire il caricamento, così il
+     *                           chiamante può rileggere la directory invece di ignorarla
+     */
+    private void loadSSTables(boolean failOnMissingIndex) throws IOException {
         File[] binFiles = sstableDir.listFiles((_, name) -> name.endsWith(".bin"));
         if (binFiles == null) return;
 
+        // Ordine per nome = ordine di creazione: getFromSSTables cerca dall'ultima alla prima
+        Arrays.sort(binFiles, Comparator.comparing(File::getName));
+
+        // Le tabelle già aperte vengono riusate: i file SSTable non cambiano mai dopo la scrittura
+        Map<String, SSTable> open = new HashMap<>();
+        for (SSTable sstable : sstables) {
+            open.put(sstable.binFile.getName(), sstable);
+        }
+
+        List<SSTable> loaded = new ArrayList<>();
         for (File binFile : binFiles) {
+            SSTable existing = open.get(binFile.getName());
+            if (existing != null && existing.mappedBuffer.capacity() == binFile.length()) {
+                loaded.add(existing);
+                continue;
+            }
             File idxFile = new File(binFile.getAbsolutePath().replace(".bin", ".idx"));
             if (!idxFile.exists()) {
+                if (failOnMissingIndex) throw new NoSuchFileException(idxFile.getPath());
                 logger.warn("Missing index file for SSTable: {}", binFile.getName());
                 continue;
             }
-            sstables.add(new SSTable(binFile, idxFile));
+            loaded.add(new SSTable(binFile, idxFile));
         }
+
+        sstables.clear();
+        sstables.addAll(loaded);
+    }
+
+    /**
+     * Riallinea le SSTable in memoria con i file presenti nella directory, aprendo quelle nuove
+     * e dimenticando quelle rimosse. Usato da {@link JKVReplica} quando il primario fa flush o compatta.
+     * Lancia {@link NoSuchFileException} se una tabella sparisce durante la lettura; in quel caso
+     * le tabelle in memoria restano quelle precedenti e la chiamata va ripetuta.
+     */
+    public void refresh() throws IOException {
+        loadSSTables(true);
     }
 
     public void flush(TreeMap<String, String> memtable) throws IOException {
-        long ts = System.currentTimeMillis();
+        long ts = nextTableId();
         File flushFile = new File(sstableDir, "sstable_" + ts + ".bin");
         File indexFile = new File(sstableDir, "sstable_" + ts + ".idx");
 
@@ -52,100 +139,348 @@ public class SSTableManager {
 
     public String getFromSSTables(String key) {
         for (int i = sstables.size() - 1; i >= 0; i--) {
-            String val = sstables.get(i).search(key);
-            if (val != null) {
-                if (TOMBSTONE.equals(val)) return null;
-                return val;
+            SSTable sstable = sstables.get(i);
+            if (sstable.contains(key)) {
+                return sstable.search(key); // null se tombstone
             }
         }
         return null;
     }
 
+    /**
+     * Risolve un gruppo di chiavi visitando ogni SSTable una sola volta, dalla più recente
+     * alla più vecchia. Le chiavi trovate (anche come tombstone) escono dal gruppo e non
+     * vengono cercate nelle tabelle più vecchie. Restituisce solo le chiavi con un valore.
+     */
+    public Map<String, String> multiGetFromSSTables(Collection<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        List<String> remaining = new ArrayList<>(new TreeSet<>(keys));
+
+        for (int i = sstables.size() - 1; i >= 0 && !remaining.isEmpty(); i--) {
+            SSTable sstable = sstables.get(i);
+            Map<String, String> found = remaining.size() >= MULTIGET_PARALLEL_THRESHOLD
+                    ? ForkJoinPool.commonPool().invoke(new ProbeTask(sstable, remaining))
+                    : sstable.searchAll(remaining);
+            if (found.isEmpty()) continue;
+
+            for (Map.Entry<String, String> e : found.entrySet()) {
+                if (e.getValue() != null) {
+                    result.put(e.getKey(), e.getValue());
+                }
+            }
+            remaining.removeIf(found::containsKey);
+        }
+        return result;
+    }
+
+    /**
+     * Divide le chiavi ordinate in blocchi contigui, cercati in parallelo sulla stessa SSTable.
+     */
+    private static class ProbeTask extends RecursiveTask<Map<String, String>> {
+        private final SSTable sstable;
+        private final List<String> keys;
+
+        ProbeTask(SSTable sstable, List<String> keys) {
+            this.sstable = sstable;
+            this.keys = keys;
+        }
+
+        @Override
+        protected Map<String, String> compute() {
+            if (keys.size() <= MULTIGET_CHUNK_SIZE) {
+                return sstable.searchAll(keys);
+            }
+            int mid = keys.size() / 2;
+            ProbeTask left = new ProbeTask(sstable, keys.subList(0, mid));
+            left.fork();
+            Map<String, String> found = new ProbeTask(sstable, keys.subList(mid, keys.size())).compute();
+            found.putAll(left.join());
+            return found;
+        }
+    }
+
+    /**
+     * Fonde tutte le SSTable quando ce n'è più di una, oppure quando una tabella ha
+     * una densità di tombstone oltre TOMBSTONE_COMPACTION_RATIO. La compattazione copre
+     * sempre tutti i dati su disco, quindi le tombstone non servono più e vengono eliminate.
+     */
     public void compactIfNeeded() throws IOException {
-        File[] files = sstableDir.listFiles((_, name) -> name.endsWith(".bin"));
-        if (files == null || files.length < 2) return;
+        if (sstables.isEmpty()) return;
+        if (sstables.size() < 2) {
+            SSTable only = sstables.getFirst();
+            if (only.tombstoneRatio() < TOMBSTONE_COMPACTION_RATIO) return;
+            logger.info("SSTable {} is {}% tombstones, compacting to drop them",
+                    only.binFile.getName(), Math.round(only.tombstoneRatio() * 100));
+        }
 
-        Arrays.sort(files, Comparator.comparing(File::getName));
+        List<SSTable> inputs = new ArrayList<>();
+        for (SSTable sstable : sstables) {
+            if (hasValidMagic(sstable.binFile)) {
+                inputs.add(sstable);
+            } else {
+                logger.warn("Skipping corrupted SSTable: {}", sstable.binFile.getName());
+            }
+        }
 
-        Map<String, String> mergedMap = new TreeMap<>();
+        // Ogni intervallo [splits[r-1], splits[r]) viene fuso in modo indipendente in un proprio file
+        List<String> splits = chooseSplitPoints(inputs);
+        int ranges = splits.size() + 1;
+        String baseName = "sstable_" + nextTableId() + "_merged";
+
+        List<File[]> outputs = new ArrayList<>();   // {tmpBin, tmpIdx, finalBin, finalIdx}
+        List<Callable<Integer>> jobs = new ArrayList<>();
+        for (int r = 0; r < ranges; r++) {
+            String name = ranges == 1 ? baseName : baseName + String.format("_%04d", r);
+            File[] out = {new File(sstableDir, name + ".bin.tmp"), new File(sstableDir, name + ".idx.tmp"),
+                    new File(sstableDir, name + ".bin"), new File(sstableDir, name + ".idx")};
+            outputs.add(out);
+
+            String lo = r == 0 ? null : splits.get(r - 1);
+            String hi = r == ranges - 1 ? null : splits.get(r);
+            jobs.add(() -> mergeRange(inputs, lo, hi, out[0], out[1]));
+        }
 
-        // Carica tutte le SSTable in mergedMap
-        for (File file : files) {
-            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
-                int magic = in.readInt();
-                if (magic != MAGIC) {
-                    logger.warn("Skipping corrupted SSTable: {}", file.getName());
-                    continue;
+        List<Integer> counts = new ArrayList<>();
+        try {
+            if (ranges == 1) {
+                counts.add(jobs.getFirst().call());
+            } else {
+                for (Future<Integer> f : compactionPool.invokeAll(jobs)) {
+                    counts.add(f.get());
                 }
+            }
+        } catch (Exception e) {
+            for (File[] out : outputs) {
+                for (File file : out) {
+                    if (file.exists() && deleteWithRetry(file)) {
+                        logger.warn("Failed to clean up file after aborted compaction: {}", file.getName());
+                    }
+                }
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("Compaction failed", cause);
+        }
 
-                int count = in.readInt();
-                for (int i = 0; i < count; i++) {
-                    int keyLen = in.readInt();
-                    byte[] keyBytes = in.readNBytes(keyLen);
-                    String key = new String(keyBytes, StandardCharsets.UTF_8);
+        // Installa tutti gli output insieme: prima i rename, poi la rimozione dei vecchi file
+        List<SSTable> compacted = new ArrayList<>();
+        for (int r = 0; r < ranges; r++) {
+            File[] out = outputs.get(r);
+            if (counts.get(r) == 0) {
+                deleteWithRetry(out[0]);
+                deleteWithRetry(out[1]);
+                continue;
+            }
+            Files.move(out[1].toPath(), out[3].toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(out[0].toPath(), out[2].toPath(), StandardCopyOption.ATOMIC_MOVE);
+            compacted.add(new SSTable(out[2], out[3]));
+        }
 
-                    int valLen = in.readInt();
-                    String value = (valLen == -1) ? null : new String(in.readNBytes(valLen), StandardCharsets.UTF_8);
+        logger.info("Compacted {} SSTables into {} files ({} subcompactions)", sstables.size(), compacted.size(), ranges);
 
-                    mergedMap.put(key, value);
-                }
+        // Cancella i vecchi file dal più vecchio al più recente. Gli output non contengono tombstone:
+        // se un input non si lascia cancellare, restano anche tutti quelli più recenti, così le loro
+        // tombstone continuano a nascondere le chiavi cancellate che l'input sopravvissuto contiene
+        List<SSTable> retained = new ArrayList<>();
+        for (SSTable old : sstables) {
+            if (!retained.isEmpty() || !deleteSSTable(old)) {
+                retained.add(old);
             }
         }
+        if (!retained.isEmpty()) {
+            logger.warn("Kept {} compacted SSTables that could not be deleted, starting from {}",
+                    retained.size(), retained.getFirst().binFile.getName());
+        }
 
-        // Nuovo nome per la SSTable compatta
-        String baseName = "sstable_" + System.currentTimeMillis() + "_merged";
-        File compactedBin = new File(sstableDir, baseName + ".bin");
-        File compactedIdx = new File(sstableDir, baseName + ".idx");
+        sstables.clear();
+        sstables.addAll(retained);   // più vecchie degli output, che le sovrascrivono
+        sstables.addAll(compacted);
+    }
 
-        writeSSTableWithIndex(compactedBin, compactedIdx, mergedMap);
+    // True se il .bin non esiste più: senza .bin la tabella non viene più caricata
+    private boolean deleteSSTable(SSTable sstable) {
+        if (sstable.binFile.exists() && deleteWithRetry(sstable.binFile) && sstable.binFile.exists()) {
+            logger.warn("Failed to delete old SSTable: {}", sstable.binFile.getName());
+            return false;
+        }
+        if (sstable.idxFile.exists() && deleteWithRetry(sstable.idxFile)) {
+            logger.warn("Failed to delete old SSTable index: {}", sstable.idxFile.getName());
+        }
+        return true;
+    }
+
+    /**
+     * Sceglie fino a maxSubcompactions - 1 chiavi di separazione campionando gli indici in memoria,
+     * in proporzione alla dimensione di ogni SSTable. Se i dati superano MAX_COMPACTION_OUTPUT
+     * gli intervalli aumentano, così nessun output supera la dimensione mappabile.
+     * Lista vuota = un'unica compattazione.
+     */
+    private List<String> chooseSplitPoints(List<SSTable> inputs) {
+        long total = 0;
+        long bytes = 0;
+        for (SSTable sstable : inputs) {
+            total += sstable.index.size();
+            bytes += sstable.binFile.length();
+        }
+        int k = (int) Math.min(maxSubcompactions, total / MIN_SUBCOMPACTION_ENTRIES);
+        k = (int) Math.max(k, (bytes + MAX_COMPACTION_OUTPUT - 1) / MAX_COMPACTION_OUTPUT);
+        if (k <= 1) return List.of();
+
+        long stride = Math.max(1, total / (k * 32L));
+        TreeSet<String> samples = new TreeSet<>();
+        for (SSTable sstable : inputs) {
+            long i = 0;
+            for (String key : sstable.index.keySet()) {
+                if (i++ % stride == 0) samples.add(key);
+            }
+        }
 
-        logger.info("Compacted SSTables into: {} and {}", compactedBin.getName(), compactedIdx.getName());
+        List<String> sorted = new ArrayList<>(samples);
+        List<String> splits = new ArrayList<>();
+        for (int r = 1; r < k; r++) {
+            String split = sorted.get((int) ((long) r * sorted.size() / k));
+            if (splits.isEmpty() || split.compareTo(splits.getLast()) > 0) {
+                splits.add(split);
+            }
+        }
+        return splits;
+    }
 
-        // Cancella vecchi file .bin e .idx
-        for (File file : files) {
-            File idxFile = new File(file.getAbsolutePath().replace(".bin", ".idx"));
+    /**
+     * Fonde in streaming le chiavi in [lo, hi) di tutte le SSTable (null = illimitato).
+     * Ogni sorgente parte dall'offset indicato dal proprio indice. Restituisce le entry scritte.
+     */
+    private int mergeRange(List<SSTable> inputs, String lo, String hi, File binFile, File idxFile) throws IOException {
+        List<SSTableIterator> sources = new ArrayList<>();
+        try {
+            for (SSTable sstable : inputs) {
+                NavigableMap<String, Long> range = sstable.index;
+                if (lo != null) range = range.tailMap(lo, true);
+                if (hi != null) range = range.headMap(hi, false);
+                if (range.isEmpty()) continue;
+                sources.add(new SSTableIterator(sstable.binFile, range.firstEntry().getValue(), range.size()));
+            }
 
-            if (deleteWithRetry(file)) {
-                logger.warn("Failed to delete old SSTable: {}", file.getName());
+            SSTableWriter writer = new SSTableWriter(binFile, idxFile);
+            try {
+                SSTableWriter.merge(sources, writer, true);
+            } catch (IOException | RuntimeException e) {
+                writer.abort();
+                throw e;
             }
-            if (idxFile.exists() && deleteWithRetry(idxFile)) {
-                logger.warn("Failed to delete old SSTable index: {}", idxFile.getName());
+            writer.close();
+            return writer.count();
+        } finally {
+            for (SSTableIterator it : sources) {
+                it.close();
             }
         }
+    }
 
-        // Ricarica SSTables per aggiornare la lista in memoria
-        sstables.clear();
-        loadSSTables();
+    private boolean hasValidMagic(File binFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binFile)))) {
+            return in.available() >= 4 && SSTableWriter.isKnownMagic(in.readInt());
+        }
     }
 
     private void writeSSTableWithIndex(File binFile, File idxFile, Map<String, String> data) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(binFile, "rw");
-             DataOutputStream idxOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(idxFile)))) {
-
-            raf.writeInt(MAGIC);
-            raf.writeInt(data.size());
+        SSTableWriter.writeSorted(data.entrySet().iterator(), binFile, idxFile);
+    }
 
-            for (Map.Entry<String, String> entry : data.entrySet()) {
-                long pos = raf.getFilePointer();
+    /**
+     * Collega SSTable costruiti esternamente (es. con {@link SSTableWriter}) all'insieme attivo.
+     * Ogni path indica un file .bin con il relativo .idx accanto. I file vengono prima
+     * preparati con nomi temporanei, aperti e verificati, e poi rinominati tutti insieme;
+     * diventano visibili alle letture solo quando l'intero gruppo è stato installato,
+     * come tabelle più recenti. Un file più grande di {@link SSTable#MAX_FILE_SIZE} va
+     * diviso in più tabelle importate insieme.
+     */
+    public void ingest(List<Path> binPaths) throws IOException {
+        if (binPaths.isEmpty()) return;
+
+        String baseName = "sstable_" + nextTableId() + "_ingest";
+        List<File[]> staged = new ArrayList<>();   // {tmpBin, tmpIdx, finalBin, finalIdx}
+        List<File> installed = new ArrayList<>();  // file già rinominati sui nomi finali
+        List<SSTable> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < binPaths.size(); i++) {
+                Path bin = binPaths.get(i);
+                String binName = bin.toString();
+                if (!binName.endsWith(".bin")) {
+                    throw new IOException("SSTable path must end with .bin: " + bin);
+                }
+                Path idx = Paths.get(binName.substring(0, binName.length() - ".bin".length()) + ".idx");
+                if (!Files.exists(bin) || !Files.exists(idx)) {
+                    throw new IOException("Missing SSTable or index file for ingestion: " + bin);
+                }
+                if (Files.size(bin) > SSTable.MAX_FILE_SIZE) {
+                    throw new IOException("SSTable larger than " + SSTable.MAX_FILE_SIZE + " bytes, split it before ingesting: " + bin);
+                }
+                if (!hasValidMagic(bin.toFile())) {
+                    throw new IOException("Invalid SSTable magic, refusing to ingest: " + bin);
+                }
 
-                byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
-                byte[] valBytes = entry.getValue() == null ? null : entry.getValue().getBytes(StandardCharsets.UTF_8);
+                String name = baseName + String.format("%04d", i);
+                File tmpBin = new File(sstableDir, name + ".bin.tmp");
+                File tmpIdx = new File(sstableDir, name + ".idx.tmp");
+                staged.add(new File[]{tmpBin, tmpIdx, new File(sstableDir, name + ".bin"), new File(sstableDir, name + ".idx")});
+                linkOrCopy(bin, tmpBin.toPath());
+                linkOrCopy(idx, tmpIdx.toPath());
+            }
 
-                raf.writeInt(keyBytes.length);
-                raf.write(keyBytes);
+            // Ogni tabella viene aperta prima di qualunque rename: un file che non si carica
+            // non deve mai comparire in sstables/, dove impedirebbe le riaperture successive
+            for (File[] f : staged) {
+                SSTable sstable = new SSTable(f[0], f[1]);
+                sstable.validate();
+                opened.add(sstable);
+            }
 
-                if (valBytes == null) {
-                    raf.writeInt(-1);
-                } else {
-                    raf.writeInt(valBytes.length);
-                    raf.write(valBytes);
+            for (File[] f : staged) {
+                if (f[2].exists() || f[3].exists()) {
+                    throw new FileAlreadyExistsException(f[2].getPath(), null, "SSTable name already in use");
                 }
+            }
 
-                // Scrivi indice: chiave + posizione
-                idxOut.writeInt(keyBytes.length);
-                idxOut.write(keyBytes);
-                idxOut.writeLong(pos);
+            // L'indice viene rinominato prima del .bin: loadSSTables vede la tabella solo se completa
+            for (File[] f : staged) {
+                Files.move(f[1].toPath(), f[3].toPath(), StandardCopyOption.ATOMIC_MOVE);
+                installed.add(f[3]);
+                Files.move(f[0].toPath(), f[2].toPath(), StandardCopyOption.ATOMIC_MOVE);
+                installed.add(f[2]);
+            }
+
+            List<SSTable> ingested = new ArrayList<>();
+            for (int i = 0; i < staged.size(); i++) {
+                ingested.add(opened.get(i).renamedTo(staged.get(i)[2], staged.get(i)[3]));
+            }
+            sstables.addAll(ingested);
+            logger.info("Ingested {} external SSTables as {}*", ingested.size(), baseName);
+        } catch (IOException | RuntimeException e) {
+            // Dei nomi finali vengono rimossi solo quelli creati da questa importazione
+            List<File> created = new ArrayList<>(installed);
+            for (File[] f : staged) {
+                created.add(f[0]);
+                created.add(f[1]);
             }
+            for (File file : created) {
+                if (file.exists() && deleteWithRetry(file)) {
+                    logger.warn("Failed to clean up file after aborted ingestion: {}", file.getName());
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            // File system diverso o hard link non supportati
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
@@ -0,0 +1,294 @@
+package com.jkv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Scrive un SSTable (.bin + .idx) a partire da entry già ordinate per chiave,
+ * nello stesso formato letto da {@link SSTable} e {@link SSTableManager}.
+ *
+ * <p>Formato .bin: MAGIC, numero di entry, numero di tombstone, poi per ogni entry
+ * keyLen, key, valLen, value (valLen == -1 per le tombstone).
+ * Formato .idx: keyLen, key, offset nel .bin.</p>
+ *
+ * <p>I due contatori vengono scritti come segnaposto e aggiornati in {@link #close()},
+ * così il writer può consumare uno stream di lunghezza sconosciuta.</p>
+ *
+ * <p>Il writer scrive su file ".tmp" e in {@link #close()} li rinomina atomicamente sui nomi
+ * finali, prima l'indice e poi il .bin: chi legge la directory non vede mai una tabella a metà,
+ * e un file esistente con lo stesso nome (magari collegato con hard link a una SSTable attiva)
+ * viene sostituito senza essere troncato. {@link #abort()} scarta i file temporanei.</p>
+ */
+public class SSTableWriter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SSTableWriter.class);
+    static final int MAGIC = 0x4A4B5632; // "JKV2"
+    static final int HEADER_SIZE = 12; // MAGIC + count + tombstones
+
+    // Formato v1 (solo lettura): header senza contatore di tombstone, cancellazioni come valore letterale
+    static final int MAGIC_V1 = 0x4A4B565F; // "JKV_"
+    static final int HEADER_SIZE_V1 = 8;
+    static final String LEGACY_TOMBSTONE = "__TOMBSTONE__";
+
+    private final File binFile;
+    private final File idxFile;
+    private final File tmpBin;
+    private final File tmpIdx;
+    private final DataOutputStream binOut;
+    private final DataOutputStream idxOut;
+    private long position = HEADER_SIZE;
+    private int count = 0;
+    private int tombstones = 0;
+    private String lastKey;
+    private boolean closed = false;
+
+    public SSTableWriter(File binFile, File idxFile) throws IOException {
+        this.binFile = binFile;
+        this.idxFile = idxFile;
+        this.tmpBin = new File(binFile.getAbsolutePath() + ".tmp");
+        this.tmpIdx = idxFile == null ? null : new File(idxFile.getAbsolutePath() + ".tmp");
+        this.binOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpBin)));
+        this.idxOut = tmpIdx == null ? null
+                : new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpIdx)));
+        binOut.writeInt(MAGIC);
+        binOut.writeInt(0); // aggiornati in close()
+        binOut.writeInt(0);
+    }
+
+    static boolean isKnownMagic(int magic) {
+        return magic == MAGIC || magic == MAGIC_V1;
+    }
+
+    /**
+     * Aggiunge una entry. Le chiavi devono arrivare in ordine strettamente crescente;
+     * un valore null viene scritto come tombstone.
+     */
+    public void add(String key, String value) throws IOException {
+        if (closed) throw new IllegalStateException("SSTableWriter already closed: " + binFile.getName());
+        if (lastKey != null && key.compareTo(lastKey) <= 0) {
+            throw new IllegalArgumentException("Keys must be strictly increasing: '" + key + "' after '" + lastKey + "'");
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        long pos = position;
+        long end = pos + 8L + keyBytes.length + (valBytes == null ? 0 : valBytes.length);
+        if (end > SSTable.MAX_FILE_SIZE) {
+            // Oltre questa dimensione il file non può essere mappato: i dati vanno divisi su più tabelle
+            throw new IOException("SSTable " + binFile.getName() + " would exceed " + SSTable.MAX_FILE_SIZE
+                    + " bytes after " + count + " entries");
+        }
+
+        binOut.writeInt(keyBytes.length);
+        binOut.write(keyBytes);
+        if (valBytes == null) {
+            binOut.writeInt(-1);
+            tombstones++;
+        } else {
+            binOut.writeInt(valBytes.length);
+            binOut.write(valBytes);
+        }
+
+        if (idxOut != null) {
+            idxOut.writeInt(keyBytes.length);
+            idxOut.write(keyBytes);
+            idxOut.writeLong(pos);
+        }
+
+        position = end;
+        lastKey = key;
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Completa l'header e pubblica i file sui nomi finali.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            closeStreams();
+            try (RandomAccessFile raf = new RandomAccessFile(tmpBin, "rw")) {
+                raf.seek(4);
+                raf.writeInt(count);
+                raf.writeInt(tombstones);
+                raf.getFD().sync();
+            }
+            if (tmpIdx != null) {
+                Files.move(tmpIdx.toPath(), idxFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmpBin.toPath(), binFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            deleteTemporaryFiles();
+            throw e;
+        }
+    }
+
+    /**
+     * Scarta quanto scritto finora senza toccare i file finali.
+     */
+    public void abort() {
+        if (closed) return;
+        closed = true;
+        try {
+            closeStreams();
+        } catch (IOException e) {
+            logger.warn("Failed to close aborted SSTable {}", binFile.getName());
+        }
+        deleteTemporaryFiles();
+    }
+
+    private void closeStreams() throws IOException {
+        try {
+            binOut.close();
+        } finally {
+            if (idxOut != null) idxOut.close();
+        }
+    }
+
+    private void deleteTemporaryFiles() {
+        for (File tmp : new File[]{tmpBin, tmpIdx}) {
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                logger.warn("Failed to delete temporary file: {}", tmp.getName());
+            }
+        }
+    }
+
+    /**
+     * Scrive un SSTable da entry già ordinate per chiave.
+     */
+    public static void writeSorted(Iterator<? extends Map.Entry<String, String>> entries,
+                                   File binFile, File idxFile) throws IOException {
+        SSTableWriter writer = new SSTableWriter(binFile, idxFile);
+        try {
+            while (entries.hasNext()) {
+                Map.Entry<String, String> e = entries.next();
+                writer.add(e.getKey(), e.getValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+    }
+
+    /**
+     * Scrive un SSTable da entry in ordine qualsiasi usando un merge sort esterno:
+     * l'input viene diviso in run ordinate di al più {@code runSize} entry, salvate come
+     * file temporanei accanto a {@code binFile}, e poi fuse con un k-way merge.
+     * In caso di chiavi duplicate vince l'ultima occorrenza nell'input.
+     */
+    public static void writeUnsorted(Iterator<? extends Map.Entry<String, String>> entries,
+                                     File binFile, File idxFile, int runSize) throws IOException {
+        if (runSize <= 0) throw new IllegalArgumentException("runSize must be positive: " + runSize);
+
+        File tmpDir = binFile.getAbsoluteFile().getParentFile();
+        List<File> runs = new ArrayList<>();
+        try {
+            TreeMap<String, String> buffer = new TreeMap<>();
+            while (entries.hasNext()) {
+                Map.Entry<String, String> e = entries.next();
+                buffer.put(e.getKey(), e.getValue());
+                if (buffer.size() >= runSize) {
+                    runs.add(spillRun(buffer, tmpDir, binFile.getName(), runs.size()));
+                    buffer.clear();
+                }
+            }
+
+            if (runs.isEmpty()) {
+                // Tutto l'input sta in memoria: nessun file temporaneo
+                writeSorted(buffer.entrySet().iterator(), binFile, idxFile);
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                runs.add(spillRun(buffer, tmpDir, binFile.getName(), runs.size()));
+                buffer.clear();
+            }
+
+            logger.info("Merging {} sorted runs into {}", runs.size(), binFile.getName());
+            mergeRuns(runs, binFile, idxFile);
+        } finally {
+            for (File run : runs) {
+                if (run.exists() && !run.delete()) {
+                    logger.warn("Failed to delete temporary run: {}", run.getName());
+                }
+            }
+        }
+    }
+
+    private static File spillRun(TreeMap<String, String> buffer, File tmpDir, String baseName, int n) throws IOException {
+        // Il suffisso ".run" evita che SSTableManager lo carichi come SSTable
+        File run = new File(tmpDir, baseName + ".run" + n);
+        writeSorted(buffer.entrySet().iterator(), run, null);
+        return run;
+    }
+
+    private static void mergeRuns(List<File> runs, File binFile, File idxFile) throws IOException {
+        List<SSTableIterator> iterators = new ArrayList<>();
+        try {
+            for (File run : runs) {
+                iterators.add(new SSTableIterator(run));
+            }
+            SSTableWriter writer = new SSTableWriter(binFile, idxFile);
+            try {
+                merge(iterators, writer, false);
+            } catch (IOException | RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
+            writer.close();
+        } finally {
+            for (SSTableIterator it : iterators) {
+                it.close();
+            }
+        }
+    }
+
+    /**
+     * K-way merge di sorgenti ordinate per chiave. A parità di chiave vince la sorgente
+     * con indice maggiore (la più recente); le versioni più vecchie vengono scartate.
+     * Con {@code dropTombstones} le chiavi la cui versione più recente è una tombstone
+     * non vengono scritte: va usato solo quando le sorgenti includono i dati più vecchi.
+     */
+    static void merge(List<? extends Iterator<Map.Entry<String, String>>> sources, SSTableWriter writer,
+                      boolean dropTombstones) throws IOException {
+        PriorityQueue<Head> heap = new PriorityQueue<>(
+                Comparator.comparing(Head::key).thenComparing(Head::source, Comparator.reverseOrder()));
+        for (int i = 0; i < sources.size(); i++) {
+            advance(heap, sources, i);
+        }
+
+        while (!heap.isEmpty()) {
+            Head head = heap.poll();
+            if (head.value() != null || !dropTombstones) {
+                writer.add(head.key(), head.value());
+            }
+            advance(heap, sources, head.source());
+
+            // Scarta le versioni più vecchie della stessa chiave
+            while (!heap.isEmpty() && heap.peek().key().equals(head.key())) {
+                advance(heap, sources, heap.poll().source());
+            }
+        }
+    }
+
+    private static void advance(PriorityQueue<Head> heap, List<? extends Iterator<Map.Entry<String, String>>> sources, int source) {
+        Iterator<Map.Entry<String, String>> it = sources.get(source);
+        if (it.hasNext()) {
+            Map.Entry<String, String> e = it.next();
+            heap.add(new Head(e.getKey(), e.getValue(), source));
+        }
+    }
+
+    private record Head(String key, String value, int source) {}
+}
@@ -0,0 +1,121 @@
+package com.jkv;
+
+import java.util.*;
+
+/**
+ * Percorso di lettura comune a {@link JKV} e {@link JKVReplica}: combina MemTable
+ * (inclusi tombstone e operandi di merge in attesa) e SSTable, dalla più recente alla più vecchia.
+ * Non scrive nulla: WAL, flush e compattazioni restano a carico di chi lo usa.
+ */
+class StoreReader {
+    private final MemTable memTable;
+    private final SSTableManager sstableManager;
+
+    StoreReader(MemTable memTable, SSTableManager sstableManager) {
+        this.memTable = memTable;
+        this.sstableManager = sstableManager;
+    }
+
+    String get(String key) {
+        if (memTable.containsKey(key)) {
+            return memTable.get(key);
+        }
+
+        String val = sstableManager.getFromSSTables(key);
+        return memTable.applyPendingMerge(key, val);
+    }
+
+    /**
+     * Legge più chiavi insieme: prima dalla MemTable, poi le restanti con una sola visita
+     * per SSTable. Le chiavi assenti o cancellate non compaiono nella mappa restituita.
+     */
+    Map<String, String> multiGet(Collection<String> keys) {
+        Map<String, String> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String key : keys) {
+            if (memTable.containsKey(key)) {
+                String val = memTable.get(key);
+                if (val != null) result.put(key, val);
+            } else {
+                missing.add(key);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            result.putAll(sstableManager.multiGetFromSSTables(missing));
+            for (String key : missing) {
+                if (memTable.hasPendingMerge(key)) {
+                    result.put(key, memTable.applyPendingMerge(key, result.get(key)));
+                }
+            }
+        }
+        return result;
+    }
+
+    boolean containsKey(String key) {
+        String val = memTable.get(key);
+        if (val != null) return true;
+        if (memTable.containsKey(key)) return false; // è tombstone
+        if (memTable.hasPendingMerge(key)) return true;
+
+        return sstableManager.getFromSSTables(key) != null;
+    }
+
+    int size() {
+        Set<String> seen = new HashSet<>();
+        int count = 0;
+
+        // Le tombstone finiscono in seen anche se non contate, così oscurano le versioni più vecchie
+        for (Map.Entry<String, String> entry : memTable.entrySet()) {
+            seen.add(entry.getKey());
+            if (entry.getValue() != null) count++;
+        }
+
+        for (String key : memTable.pendingMergeKeys()) {
+            seen.add(key);
+            count++;
+        }
+
+        List<SSTable> sstables = sstableManager.getSSTables();
+        for (int i = sstables.size() - 1; i >= 0; i--) {
+            for (Map.Entry<String, String> entry : sstables.get(i).iterate()) {
+                if (!seen.add(entry.getKey())) continue;
+                if (entry.getValue() != null) count++;
+            }
+        }
+
+        return count;
+    }
+
+    Set<String> keySet() {
+        return merged().keySet();
+    }
+
+    Iterable<? extends Map.Entry<String, String>> entrySet() {
+        return merged().entrySet();
+    }
+
+    // Vista ordinata di tutte le chiavi vive: la MemTable prevale sugli SSTable, le tombstone vengono rimosse
+    private Map<String, String> merged() {
+        Map<String, String> merged = new TreeMap<>();
+
+        // Prima carica tutte le entry dagli SSTable, dalla più vecchia alla più recente
+        for (SSTable sstable : sstableManager.getSSTables()) {
+            for (Map.Entry<String, String> e : sstable.iterate()) {
+                merged.put(e.getKey(), e.getValue());
+            }
+        }
+
+        // Sovrascrivi con i dati più recenti in memTable (inclusi tombstone)
+        merged.putAll(memTable.getMemtable());
+
+        // Combina gli operandi di merge in attesa con i valori già raccolti
+        for (String key : memTable.pendingMergeKeys()) {
+            merged.put(key, memTable.applyPendingMerge(key, merged.get(key)));
+        }
+
+        merged.values().removeIf(Objects::isNull);
+        return merged;
+    }
+}
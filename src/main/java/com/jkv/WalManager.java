@@ -4,20 +4,69 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class WalManager {
     private static final Logger logger = LoggerFactory.getLogger(WalManager.class);
+    private static final String SEGMENT_HEADER = "SEG ";
     private final File walFile;
+    private boolean legacyFormat;
 
-    public WalManager(File walFile) {
+    /**
+     * Un WAL nuovo inizia sempre con l'header "SEG n". Un file non vuoto senza header è stato
+     * scritto dalle versioni precedenti, in cui le cancellazioni erano PUT con valore
+     * "__TOMBSTONE__" o "null": viene riletto con quelle regole (vedi {@link #isLegacyFormat()}).
+     */
+    public WalManager(File walFile) throws IOException {
         this.walFile = walFile;
+        if (!walFile.exists() || walFile.length() == 0) {
+            startSegment(0);
+        } else {
+            try (RandomAccessFile raf = new RandomAccessFile(walFile, "r")) {
+                String first = raf.readLine();
+                this.legacyFormat = first == null || !first.startsWith(SEGMENT_HEADER);
+            }
+        }
+    }
+
+    /**
+     * True se il WAL è nel formato precedente ai record DEL; va svuotato con {@link #clear()}
+     * dopo il replay, prima di aggiungere nuovi record.
+     */
+    public boolean isLegacyFormat() {
+        return legacyFormat;
     }
 
     public void appendPut(String key, String value) throws IOException {
         try (FileOutputStream fos = new FileOutputStream(walFile, true);
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos))) {
-            writer.write("PUT " + key + "=" + (value == null ? "null" : value));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            writer.write("PUT " + key + "=" + value);
+            writer.newLine();
+            writer.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    public void appendDelete(String key) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(walFile, true);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            writer.write("DEL " + key);
+            writer.newLine();
+            writer.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    public void appendMerge(String key, String operand) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(walFile, true);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            writer.write("MERGE " + key + "=" + operand);
             writer.newLine();
             writer.flush();
             fos.getFD().sync();
@@ -27,27 +76,118 @@ public class WalManager {
     public void replay(Consumer<Entry> entryConsumer) throws IOException {
         if (!walFile.exists()) return;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(walFile))) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(walFile, StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                if (line.startsWith("PUT ")) {
-                    String[] parts = line.substring(4).split("=", 2);
-                    if (parts.length == 2) {
-                        String value = parts[1];
-                        if ("null".equals(value)) {
-                            value = null;
-                        }
-                        entryConsumer.accept(new Entry(parts[0], value));
-                    }
+                Entry entry = parse(line, legacyFormat);
+                if (entry != null) entryConsumer.accept(entry);
+            }
+        }
+    }
+
+    // Converte una riga del WAL in un record; null per l'header di segmento o righe non valide
+    static Entry parse(String line, boolean legacyFormat) {
+        if (line.startsWith("PUT ")) {
+            String[] parts = line.substring(4).split("=", 2);
+            if (parts.length == 2) {
+                if (legacyFormat && (SSTableWriter.LEGACY_TOMBSTONE.equals(parts[1]) || "null".equals(parts[1]))) {
+                    return new Entry(Type.DELETE, parts[0], null);
                 }
+                return new Entry(Type.PUT, parts[0], parts[1]);
+            }
+        } else if (line.startsWith("DEL ")) {
+            return new Entry(Type.DELETE, line.substring(4), null);
+        } else if (line.startsWith("MERGE ")) {
+            String[] parts = line.substring(6).split("=", 2);
+            if (parts.length == 2) {
+                return new Entry(Type.MERGE, parts[0], parts[1]);
             }
         }
+        return null;
     }
 
+    /**
+     * Svuota il WAL aprendo un nuovo segmento. Il file viene sostituito con un rename atomico
+     * e inizia con "SEG n": chi lo segue (vedi {@link DirectoryShipper}) distingue così un
+     * troncamento dopo il flush da semplici nuove scritture.
+     */
     public void clear() throws IOException {
-        new FileWriter(walFile, false).close();
+        startSegment(readSegment(walFile) + 1);
     }
 
-    public record Entry(String key, String value) {}
+    private void startSegment(long segment) throws IOException {
+        File tmp = new File(walFile.getAbsolutePath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            fos.write((SEGMENT_HEADER + segment + "\n").getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), walFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        legacyFormat = false;
+    }
+
+    /**
+     * Numero di segmento del WAL, 0 se il file non esiste o non ha ancora un header.
+     */
+    static long readSegment(File walFile) throws IOException {
+        if (!walFile.exists()) return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(walFile, "r")) {
+            return readSegment(raf);
+        }
+    }
+
+    private static long readSegment(RandomAccessFile raf) throws IOException {
+        raf.seek(0);
+        String first = raf.readLine();
+        if (first == null || !first.startsWith(SEGMENT_HEADER)) return 0;
+        try {
+            return Long.parseLong(first.substring(SEGMENT_HEADER.length()).trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid WAL segment header: {}", first);
+            return 0;
+        }
+    }
+
+    /**
+     * Legge le righe complete del WAL a partire da {@code offset}, con un solo handle sul file.
+     * Se il segmento non è più {@code segment} la lettura riparte dall'inizio del nuovo segmento.
+     * Un'eventuale riga finale incompleta viene lasciata alla lettura successiva.
+     */
+    static Chunk readFrom(File walFile, long segment, long offset) throws IOException {
+        if (!walFile.exists()) return new Chunk(0, 0, new byte[0]);
+
+        try (RandomAccessFile raf = new RandomAccessFile(walFile, "r")) {
+            long current = readSegment(raf);
+            long start = (current == segment && offset <= raf.length()) ? offset : 0;
 
+            byte[] data = new byte[Math.toIntExact(raf.length() - start)];
+            raf.seek(start);
+            raf.readFully(data);
+
+            int end = data.length;
+            while (end > 0 && data[end - 1] != '\n') end--;
+            return new Chunk(current, start, Arrays.copyOf(data, end));
+        }
+    }
+
+    public enum Type { PUT, DELETE, MERGE }
+
+    public record Entry(Type type, String key, String value) {}
+
+    /**
+     * Porzione di WAL letta da {@link #readFrom}: righe complete a partire da {@code offset}.
+     */
+    record Chunk(long segment, long offset, byte[] data) {
+        long end() {
+            return offset + data.length;
+        }
+
+        List<Entry> entries() {
+            List<Entry> entries = new ArrayList<>();
+            for (String line : new String(data, StandardCharsets.UTF_8).split("\r?\n")) {
+                Entry entry = parse(line, false);
+                if (entry != null) entries.add(entry);
+            }
+            return entries;
+        }
+    }
 }
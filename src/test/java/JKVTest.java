@@ -1,11 +1,25 @@
+import com.jkv.DirectoryShipper;
 import com.jkv.JKV;
+import com.jkv.JKVReplica;
+import com.jkv.MergeOperator;
+import com.jkv.SSTableWriter;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class JKVTest {
 
@@ -188,5 +202,514 @@ public class JKVTest {
         Assertions.assertEquals(2, keys.size());
     }
 
+    @Test
+    void testIngestPreSortedSSTables() throws IOException {
+        Path dir = Files.createTempDirectory("jkv-ingest");
+        File bin = dir.resolve("bulk.bin").toFile();
+        File idx = dir.resolve("bulk.idx").toFile();
+
+        try (SSTableWriter writer = new SSTableWriter(bin, idx)) {
+            for (int i = 0; i < 2000; i++) {
+                writer.add(String.format("bulk%05d", i), "v" + i);
+            }
+        }
+
+        db.put("bulk00001", "old");
+        db.put("other", "x");
+        db.ingest(List.of(bin.toPath()));
+
+        Assertions.assertEquals("v0", db.get("bulk00000"));
+        Assertions.assertEquals("v1", db.get("bulk00001")); // il dato importato è il più recente
+        Assertions.assertEquals("v1999", db.get("bulk01999"));
+        Assertions.assertEquals("x", db.get("other"));
+        Assertions.assertEquals(2001, db.size());
+
+        // Le tabelle importate sopravvivono alla riapertura
+        db = new JKV();
+        Assertions.assertEquals("v1999", db.get("bulk01999"));
+    }
+
+    @Test
+    void testRebuildingIngestedPathLeavesLiveTableIntact() throws IOException {
+        Path dir = Files.createTempDirectory("jkv-rebuild");
+        File bin = dir.resolve("nightly.bin").toFile();
+        File idx = dir.resolve("nightly.idx").toFile();
+
+        List<Map.Entry<String, String>> first = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            first.add(Map.entry(String.format("old%04d", i), "v" + i));
+        }
+        SSTableWriter.writeSorted(first.iterator(), bin, idx);
+        db.ingest(List.of(bin.toPath()));
+
+        // La ricostruzione notturna riscrive lo stesso path, già collegato in sstables/
+        List<Map.Entry<String, String>> second = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            second.add(Map.entry(String.format("new%04d", i), "w" + i));
+        }
+        SSTableWriter.writeSorted(second.iterator(), bin, idx);
+
+        Assertions.assertEquals("v999", db.get("old0999"));
+        Assertions.assertNull(db.get("new0000"));
+
+        db = new JKV();
+        Assertions.assertEquals("v0", db.get("old0000"));
+        Assertions.assertEquals(1000, db.size());
+
+        db.ingest(List.of(bin.toPath()));
+        Assertions.assertEquals("w499", db.get("new0499"));
+        Assertions.assertEquals(1500, db.size());
+    }
+
+    @Test
+    void testBackToBackIngestsKeepEveryTable() throws IOException {
+        Path dir = Files.createTempDirectory("jkv-burst");
+        for (int n = 0; n < 100; n++) {
+            File bin = dir.resolve("batch" + n + ".bin").toFile();
+            try (SSTableWriter writer = new SSTableWriter(bin, dir.resolve("batch" + n + ".idx").toFile())) {
+                writer.add(String.format("batch%03d", n), "v" + n);
+            }
+            db.ingest(List.of(bin.toPath()));   // più importazioni nello stesso millisecondo
+        }
+        Assertions.assertEquals(100, db.size());
+
+        db = new JKV();
+        Assertions.assertEquals(100, db.size());
+        Assertions.assertEquals("v42", db.get("batch042"));
+
+        // Flush e compattazione leggono ogni tabella importata con il proprio indice
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        Assertions.assertEquals(5100, db.size());
+        Assertions.assertEquals("v99", db.get("batch099"));
+    }
+
+    @Test
+    void testIngestRejectsUnloadableTables() throws IOException {
+        Path dir = Files.createTempDirectory("jkv-reject");
+        File good = dir.resolve("good.bin").toFile();
+        try (SSTableWriter writer = new SSTableWriter(good, dir.resolve("good.idx").toFile())) {
+            writer.add("g", "1");
+        }
+        db.put("k", "v");
+
+        // Oltre la dimensione mappabile (file sparso, non occupa spazio reale)
+        File huge = dir.resolve("huge.bin").toFile();
+        try (RandomAccessFile raf = new RandomAccessFile(huge, "rw")) {
+            raf.writeInt(0x4A4B5632);
+            raf.setLength(3L << 30);
+        }
+        Files.copy(dir.resolve("good.idx"), dir.resolve("huge.idx"));
+
+        // Indice che punta oltre la fine del .bin
+        File broken = dir.resolve("broken.bin").toFile();
+        Files.copy(good.toPath(), broken.toPath());
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(dir.resolve("broken.idx").toFile()))) {
+            out.writeInt(1);
+            out.write('b');
+            out.writeLong(1_000_000);
+        }
+
+        // Senza suffisso .bin l'indice non può essere ricavato
+        Path noSuffix = dir.resolve("good.dat");
+        Files.copy(good.toPath(), noSuffix);
+
+        for (Path bad : List.of(huge.toPath(), broken.toPath(), noSuffix)) {
+            Assertions.assertThrows(IOException.class, () -> db.ingest(List.of(good.toPath(), bad)));
+        }
+        try {
+            Assertions.assertEquals(0, new File("sstables").list((_, name) -> name.contains("_ingest")).length);
+            Assertions.assertNull(db.get("g"));   // il gruppo è importato tutto o niente
+
+            db = new JKV();
+            Assertions.assertEquals("v", db.get("k"));
+            Assertions.assertEquals(1, db.size());
+        } finally {
+            Files.delete(huge.toPath());
+        }
+    }
+
+    @Test
+    void testSSTableWriterRejectsUnsortedKeys() throws IOException {
+        Path dir = Files.createTempDirectory("jkv-writer");
+        try (SSTableWriter writer = new SSTableWriter(dir.resolve("t.bin").toFile(), dir.resolve("t.idx").toFile())) {
+            writer.add("b", "1");
+            Assertions.assertThrows(IllegalArgumentException.class, () -> writer.add("a", "2"));
+        }
+    }
+
+    @Test
+    void testSSTableWriterExternalSort() throws IOException {
+        Path dir = Files.createTempDirectory("jkv-sort");
+        File bin = dir.resolve("sorted.bin").toFile();
+        File idx = dir.resolve("sorted.idx").toFile();
+
+        List<Map.Entry<String, String>> input = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            input.add(Map.entry("k" + i, "v" + i));
+        }
+        Collections.shuffle(input, new Random(42));
+        input.add(Map.entry("k7", "latest")); // l'ultima occorrenza vince
+
+        SSTableWriter.writeUnsorted(input.iterator(), bin, idx, 64);
+
+        db.ingest(List.of(bin.toPath()));
+        Assertions.assertEquals(1000, db.size());
+        Assertions.assertEquals("latest", db.get("k7"));
+        Assertions.assertEquals("v999", db.get("k999"));
+
+        List<String> keys = new ArrayList<>(db.keySet());
+        List<String> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        Assertions.assertEquals(sorted, keys);
+        Assertions.assertEquals(2, Objects.requireNonNull(dir.toFile().list()).length); // run temporanee rimosse
+    }
+
+    @Test
+    void testMultiGet() throws IOException {
+        // 6000 chiavi: una parte finisce negli SSTable, il resto resta in MemTable
+        for (int i = 0; i < 6000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        db.del("key10");   // tombstone in MemTable
+        db.del("key5500");
+        db.put("key20", "updated");
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            keys.add("key" + i);
+        }
+        keys.add("missing");
+
+        Map<String, String> result = db.multiGet(keys);
+
+        Assertions.assertEquals(5998, result.size());
+        Assertions.assertEquals("val0", result.get("key0"));
+        Assertions.assertEquals("updated", result.get("key20"));
+        Assertions.assertEquals("val5999", result.get("key5999"));
+        Assertions.assertFalse(result.containsKey("key10"));
+        Assertions.assertFalse(result.containsKey("key5500"));
+        Assertions.assertFalse(result.containsKey("missing"));
+        for (String key : keys) {
+            Assertions.assertEquals(db.get(key), result.get(key));
+        }
+    }
+
+    @Test
+    void testParallelSubcompaction() throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            db = new JKV(pool, 4);
+            // Tre flush: la seconda e la terza compattazione lavorano su più di 4096 entry e vengono divise
+            for (int i = 0; i < 15000; i++) {
+                db.put("key" + i, "val" + i);
+            }
+            for (int i = 0; i < 5000; i += 7) {
+                db.put("key" + i, "new" + i);
+            }
+            for (int i = 0; i < 5000 - 5000 / 7; i++) {
+                db.put("pad" + i, "p");   // completa la MemTable per forzare un'altra compattazione
+            }
+
+            File[] tables = new File("sstables").listFiles((_, name) -> name.endsWith(".bin"));
+            Assertions.assertNotNull(tables);
+            Assertions.assertTrue(tables.length > 1, "La compattazione dovrebbe produrre un file per intervallo");
+
+            for (int i = 0; i < 15000; i++) {
+                String expected = (i < 5000 && i % 7 == 0) ? "new" + i : "val" + i;
+                Assertions.assertEquals(expected, db.get("key" + i));
+            }
+
+            // I file prodotti dalle subcompaction sopravvivono alla riapertura
+            db = new JKV(pool, 4);
+            Assertions.assertEquals("new7", db.get("key7"));
+            Assertions.assertEquals("val14999", db.get("key14999"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testMergeCounterAcrossFlush() throws IOException {
+        db = new JKV(MergeOperator.counterAdd());
+        db.put("hits", "10");
+        db.merge("hits", "5");
+        Assertions.assertEquals("15", db.get("hits"));
+
+        // Forza un flush: "hits" finisce in un SSTable
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "val" + i);
+        }
 
+        // Operandi senza lettura: restano in attesa finché non servono
+        db.merge("hits", "1");
+        db.merge("hits", "2");
+        db.merge("fresh", "3");
+        Assertions.assertEquals("18", db.get("hits"));
+        Assertions.assertEquals("3", db.get("fresh"));
+        Assertions.assertEquals(Map.of("hits", "18", "fresh", "3"), db.multiGet(List.of("hits", "fresh")));
+        Assertions.assertTrue(db.containsKey("fresh"));
+        Assertions.assertEquals(5002, db.size());
+
+        // Il WAL viene riapplicato alla riapertura
+        db = new JKV(MergeOperator.counterAdd());
+        Assertions.assertEquals("18", db.get("hits"));
+
+        // Un altro flush combina gli operandi e li scrive come valori normali
+        for (int i = 5000; i < 10000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        Assertions.assertEquals("18", db.get("hits"));
+        Assertions.assertEquals("3", db.get("fresh"));
+    }
+
+    @Test
+    void testMergeAfterDeleteAndBuiltIns() throws IOException {
+        db = new JKV(MergeOperator.stringAppend(","));
+        db.put("list", "a");
+        db.merge("list", "b");
+        db.del("list");
+        db.merge("list", "c");
+        Assertions.assertEquals("c", db.get("list"));
+
+        MergeOperator max = MergeOperator.max();
+        Assertions.assertEquals("9", max.merge("m", "4", List.of("9", "2")));
+        Assertions.assertEquals("-1", max.merge("m", null, List.of("-1")));
+    }
+
+    @Test
+    void testInvalidMergeOperandNeverReachesWal() throws IOException {
+        db = new JKV(MergeOperator.counterAdd());
+        db.put("hits", "10");
+        Assertions.assertThrows(NumberFormatException.class, () -> db.merge("hits", "abc"));
+        Assertions.assertThrows(NumberFormatException.class, () -> db.merge("x", "oops"));
+        db.merge("hits", "5");
+        Assertions.assertEquals("15", db.get("hits"));
+
+        db = new JKV(MergeOperator.counterAdd());
+        Assertions.assertEquals("15", db.get("hits"));
+        Assertions.assertFalse(db.containsKey("x"));
+
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "val" + i);   // il flush non trova operandi non validi
+        }
+        Assertions.assertEquals("15", db.get("hits"));
+    }
+
+    @Test
+    void testFailingMergeFoldDoesNotWedgeStore() throws IOException {
+        db = new JKV(MergeOperator.counterAdd());
+        db.put("c", "abc");
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "val" + i);   // "c" finisce in un SSTable
+        }
+
+        // L'operando è valido ma il valore base non lo è: lo si scopre solo in lettura o al flush
+        db.merge("c", "1");
+        Assertions.assertEquals("abc", db.get("c"));
+        for (int i = 5000; i < 10000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        Assertions.assertEquals("abc", db.get("c"));
+        db.put("after", "ok");
+
+        // WAL con operandi non validi scritti prima del controllo: la riapertura non fallisce
+        Files.writeString(Path.of("wal.log"), "SEG 7\nPUT hits=10\nMERGE hits=abc\nMERGE y=zz\n");
+        db = new JKV(MergeOperator.counterAdd());
+        Assertions.assertEquals("10", db.get("hits"));
+        Assertions.assertNull(db.get("y"));
+        for (int i = 0; i < 5000; i++) {
+            db.put("more" + i, "v");
+        }
+        Assertions.assertEquals("10", db.get("hits"));
+    }
+
+    @Test
+    void testMergeWithoutOperatorFails() {
+        Assertions.assertThrows(IllegalStateException.class, () -> db.merge("k", "1"));
+    }
+
+    @Test
+    void testTombstoneLiteralIsAnOrdinaryValue() throws IOException {
+        db.put("k", "__TOMBSTONE__");
+        db.put("null", "null");
+        Assertions.assertEquals("__TOMBSTONE__", db.get("k"));
+        Assertions.assertTrue(db.containsKey("k"));
+
+        // Dopo il replay del WAL
+        db = new JKV();
+        Assertions.assertEquals("__TOMBSTONE__", db.get("k"));
+        Assertions.assertEquals("null", db.get("null"));
+
+        // Dopo il flush su SSTable
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        Assertions.assertEquals("__TOMBSTONE__", db.get("k"));
+        Assertions.assertEquals(5002, db.size());
+    }
+
+    @Test
+    void testLegacyWalReplaysOldTombstones() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "val" + i);   // flush: key7 è su SSTable
+        }
+
+        // WAL scritto da una versione precedente: nessun header, cancellazioni come PUT
+        Files.writeString(Path.of("wal.log"),
+                "PUT a=1\nPUT b=2\nPUT a=__TOMBSTONE__\nPUT c=null\nPUT key7=__TOMBSTONE__\n");
+        db = new JKV();
+        Assertions.assertNull(db.get("a"));
+        Assertions.assertEquals("2", db.get("b"));
+        Assertions.assertFalse(db.containsKey("c"));
+        Assertions.assertNull(db.get("key7"));
+        Assertions.assertEquals(5000, db.size());
+
+        // Il WAL migrato usa il formato corrente: il valore letterale non è più una cancellazione
+        Assertions.assertTrue(Files.readString(Path.of("wal.log")).startsWith("SEG "));
+        db.put("d", "__TOMBSTONE__");
+        db = new JKV();
+        Assertions.assertEquals("__TOMBSTONE__", db.get("d"));
+        Assertions.assertNull(db.get("key7"));
+        Assertions.assertEquals("2", db.get("b"));
+    }
+
+    @Test
+    void testCompactionDropsTombstonesFromDisk() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            db.del("key" + i);   // il secondo flush contiene solo tombstone
+        }
+        Assertions.assertEquals(0, db.size());
+
+        // La compattazione copre tutti i dati: le tombstone non vengono riscritte
+        File[] tables = new File("sstables").listFiles((_, name) -> name.endsWith(".bin"));
+        Assertions.assertNotNull(tables);
+        Assertions.assertEquals(0, tables.length);
+        Assertions.assertNull(db.get("key42"));
+    }
+
+    @Test
+    void testTombstoneHeavyTableIsCompacted() throws IOException {
+        for (int i = 0; i < 2000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        for (int i = 0; i < 3000; i++) {
+            db.del("gone" + i);   // 60% tombstone in un'unica tabella
+        }
+
+        File[] tables = new File("sstables").listFiles((_, name) -> name.endsWith(".bin"));
+        Assertions.assertNotNull(tables);
+        Assertions.assertEquals(1, tables.length);
+        Assertions.assertTrue(tables[0].length() < 2000 * 30, "Le tombstone dovrebbero essere state rimosse");
+        Assertions.assertEquals(2000, db.size());
+        Assertions.assertEquals("val1999", db.get("key1999"));
+    }
+
+    @Test
+    void testReplicaTailsPrimary() throws IOException {
+        File replicaDir = Files.createTempDirectory("jkv-replica").toFile();
+        DirectoryShipper shipper = new DirectoryShipper(new File("."), replicaDir);
+
+        db.put("a", "1");
+        db.put("b", "2");
+        db.del("b");
+        shipper.ship();
+
+        JKVReplica replica = new JKVReplica(replicaDir);
+        Assertions.assertEquals("1", replica.get("a"));
+        Assertions.assertNull(replica.get("b"));
+        Assertions.assertTrue(replica.replicationLagMillis() >= 0);
+
+        // Finché non viene spedito e applicato, il nuovo dato non è visibile
+        db.put("c", "3");
+        Assertions.assertNull(replica.get("c"));
+        shipper.ship();
+        replica.refresh();
+        Assertions.assertEquals("3", replica.get("c"));
+
+        // Flush e compattazioni sul primario: il WAL cambia segmento e le SSTable vengono sostituite
+        for (int i = 0; i < 12000; i++) {
+            db.put("key" + i, "val" + i);
+        }
+        db.del("key5");
+        shipper.ship();
+        replica.refresh();
+
+        Assertions.assertEquals(db.size(), replica.size());
+        Assertions.assertEquals("1", replica.get("a"));
+        Assertions.assertEquals("val11999", replica.get("key11999"));
+        Assertions.assertNull(replica.get("key5"));
+        Assertions.assertEquals(db.keySet(), replica.keySet());
+    }
+
+    @Test
+    void testReplicaRefreshDoesNotSkipTableWithoutIndex() throws IOException {
+        File replicaDir = Files.createTempDirectory("jkv-replica-idx").toFile();
+        DirectoryShipper shipper = new DirectoryShipper(new File("."), replicaDir);
+        for (int i = 0; i < 5000; i++) {
+            db.put("key" + i, "old");
+        }
+        shipper.ship();
+        JKVReplica replica = new JKVReplica(replicaDir);
+        Assertions.assertEquals("old", replica.get("key1"));
+
+        // Una tabella più recente elencata ma senza indice (rimosso tra l'elenco e l'apertura):
+        // ignorarla esporrebbe il valore vecchio, quindi la refresh fallisce e va ripetuta
+        File newer = new File(replicaDir, "sstables/sstable_9999999999999.bin");
+        Files.writeString(newer.toPath(), "partial");
+        Assertions.assertThrows(NoSuchFileException.class, replica::refresh);
+        Assertions.assertEquals("old", replica.get("key1"));
+
+        Files.delete(newer.toPath());
+        replica.refresh();
+        Assertions.assertEquals("old", replica.get("key1"));
+    }
+
+    @Test
+    void testReplicaShippedWhileFlushing() throws Exception {
+        File replicaDir = Files.createTempDirectory("jkv-replica-live").toFile();
+        DirectoryShipper shipper = new DirectoryShipper(new File("."), replicaDir);
+        shipper.ship();
+        JKVReplica replica = new JKVReplica(replicaDir);
+
+        // Spedizioni continue su un altro thread durante un unico flush, senza compattazioni
+        // che possano sostituire una copia incompleta
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread tailer = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    shipper.ship();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        tailer.start();
+
+        for (int i = 0; i < 7000; i++) {
+            db.put("key" + i, "val" + i);
+            if (i % 500 == 0) replica.refresh();
+        }
+        db.del("key42");
+        done.set(true);
+        tailer.join();
+        Assertions.assertNull(failure.get(), () -> "Shipper failed: " + failure.get());
+
+        shipper.ship();
+        replica.refresh();
+        Assertions.assertEquals(db.size(), replica.size());
+        Assertions.assertEquals(db.keySet(), replica.keySet());
+        Assertions.assertEquals("val6999", replica.get("key6999"));
+        Assertions.assertNull(replica.get("key42"));
+
+        // Anche una replica aperta da zero sulla copia vede tutti i dati
+        JKVReplica fresh = new JKVReplica(replicaDir);
+        Assertions.assertEquals(db.size(), fresh.size());
+        Assertions.assertEquals("val0", fresh.get("key0"));
+    }
 }